@@ -0,0 +1,102 @@
+package com.sdokara.ri.synonym;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adapts the write concurrency limit to how much writes hold up reads, in an AIMD fashion. The limit is lowered
+ * multiplicatively whenever the {@linkplain MovingAverage moving average} of read latency, or of the time readers wait
+ * for the {@link SynonymServiceImpl} read lock as tracked by the {@link LockWaitMonitor}, exceeds its target. It is
+ * raised by one after a full limit worth of writes complete while the write limit is saturated and reads are within
+ * their targets. <br/>
+ * Reads are never throttled because of writers, as holding reads back would not make the writers any faster.
+ */
+class AdaptiveWriteLimit {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final ConcurrencyLimiter writeLimiter;
+    private final LockWaitMonitor lockWaitMonitor;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long readLatencyTargetNanos;
+    private final long lockWaitTargetNanos;
+    // back off at most once per cooldown, otherwise a single slow burst would collapse the limit
+    private final long cooldownNanos;
+
+    private final MovingAverage readLatency = new MovingAverage();
+    private final Lock lock = new ReentrantLock();
+    private int saturatedWrites;
+    private long lastBackoffNanos;
+
+    AdaptiveWriteLimit(ConcurrencyLimiter writeLimiter, LockWaitMonitor lockWaitMonitor,
+                       AdmissionProperties.Adaptive adaptive) {
+        if (adaptive.getMinWriteConcurrency() < 1
+                || adaptive.getMaxWriteConcurrency() < adaptive.getMinWriteConcurrency()) {
+            throw new IllegalArgumentException("Write concurrency bounds must satisfy 1 <= min <= max");
+        }
+        this.writeLimiter = writeLimiter;
+        this.lockWaitMonitor = lockWaitMonitor;
+        this.minLimit = adaptive.getMinWriteConcurrency();
+        this.maxLimit = adaptive.getMaxWriteConcurrency();
+        this.readLatencyTargetNanos = adaptive.getReadLatencyTarget().toNanos();
+        this.lockWaitTargetNanos = adaptive.getLockWaitTarget().toNanos();
+        this.cooldownNanos = Math.max(readLatencyTargetNanos, lockWaitTargetNanos);
+        writeLimiter.setLimit(Math.min(maxLimit, Math.max(minLimit, writeLimiter.getLimit())));
+    }
+
+    /**
+     * Records a completed read, backing off the write limit if reads are held up.
+     *
+     * @param latencyNanos the time it took to process the read
+     */
+    void onRead(long latencyNanos) {
+        readLatency.record(latencyNanos);
+        if (!readsWithinTargets()) {
+            backoff();
+        }
+    }
+
+    /**
+     * Records a completed write, raising the write limit if writes are held back while reads are within targets.
+     *
+     * @param saturated whether the write limit was saturated when the write completed
+     */
+    void onWrite(boolean saturated) {
+        if (!saturated || !readsWithinTargets()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (System.nanoTime() - lastBackoffNanos < cooldownNanos) {
+                saturatedWrites = 0;
+                return;
+            }
+            int limit = writeLimiter.getLimit();
+            if (++saturatedWrites >= limit) {
+                saturatedWrites = 0;
+                writeLimiter.setLimit(Math.min(maxLimit, limit + 1));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean readsWithinTargets() {
+        return readLatency.getNanos() <= readLatencyTargetNanos
+                && lockWaitMonitor.getReadWaitNanos() <= lockWaitTargetNanos;
+    }
+
+    private void backoff() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lastBackoffNanos >= cooldownNanos) {
+                lastBackoffNanos = now;
+                saturatedWrites = 0;
+                writeLimiter.setLimit(Math.max(minLimit, (int) (writeLimiter.getLimit() * BACKOFF_RATIO)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
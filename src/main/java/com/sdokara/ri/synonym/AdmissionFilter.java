@@ -0,0 +1,124 @@
+package com.sdokara.ri.synonym;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the {@code /synonyms} endpoints. Safe methods are admitted as reads, everything else as writes,
+ * each through its own {@link RateLimiter} and {@link ConcurrencyLimiter}, the write limit being adapted by an
+ * {@link AdaptiveWriteLimit} to how much writes hold up reads. Requests over a client's rate are rejected
+ * with {@code 429 Too Many Requests}, requests that cannot get a concurrency slot in time with
+ * {@code 503 Service Unavailable}, both with a {@code Retry-After} header.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+    private final String clientHeader;
+    private final Admission read;
+    private final Admission write;
+    private final AdaptiveWriteLimit adaptiveWriteLimit;
+
+    public AdmissionFilter(AdmissionProperties properties, LockWaitMonitor lockWaitMonitor) {
+        this.clientHeader = properties.getClientHeader();
+        this.read = new Admission(properties.getRead(), properties.getMaxClients());
+        this.write = new Admission(properties.getWrite(), properties.getMaxClients());
+        this.adaptiveWriteLimit = properties.getAdaptive().isEnabled()
+                ? new AdaptiveWriteLimit(write.concurrencyLimiter, lockWaitMonitor, properties.getAdaptive())
+                : null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean isRead = isRead(request);
+        Admission admission = isRead ? read : write;
+
+        if (admission.rateLimiter != null) {
+            long waitNanos = admission.rateLimiter.tryAcquire(client(request));
+            if (waitNanos > 0) {
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, toSeconds(waitNanos), "Request rate limit exceeded");
+                return;
+            }
+        }
+
+        try {
+            if (!admission.concurrencyLimiter.acquire()) {
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, admission.concurrencyLimiter.retryAfterSeconds(),
+                        "Server is overloaded");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, admission.concurrencyLimiter.retryAfterSeconds(),
+                    "Server is shutting down");
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            boolean saturated = admission.concurrencyLimiter.release();
+            if (adaptiveWriteLimit != null) {
+                if (isRead) {
+                    adaptiveWriteLimit.onRead(System.nanoTime() - start);
+                } else {
+                    adaptiveWriteLimit.onWrite(saturated);
+                }
+            }
+        }
+    }
+
+    int getWriteLimit() {
+        return write.concurrencyLimiter.getLimit();
+    }
+
+    private String client(HttpServletRequest request) {
+        if (clientHeader != null) {
+            String client = request.getHeader(clientHeader);
+            if (client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds,
+                               String message) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        // written directly rather than through the error page, so that shedding load stays as cheap as possible
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+
+    private static class Admission {
+        private final RateLimiter rateLimiter;
+        private final ConcurrencyLimiter concurrencyLimiter;
+
+        private Admission(AdmissionProperties.Limits limits, int maxClients) {
+            this.rateLimiter = limits.getRate() > 0
+                    ? new RateLimiter(limits.getRate(), limits.getBurst(), maxClients)
+                    : null;
+            this.concurrencyLimiter = new ConcurrencyLimiter(limits.getConcurrency(), limits.getQueueSize(),
+                    limits.getQueueTimeout());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.sdokara.ri.synonym;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Admission control settings for the {@code /synonyms} endpoints. Reads and writes are admitted independently, each
+ * with its own concurrency limit, wait queue and per-client rate limit, so that a flood of writes cannot starve reads.
+ */
+@Data
+@ConfigurationProperties(prefix = "synonyms.admission")
+public class AdmissionProperties {
+    /**
+     * Whether admission control is enabled at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Request header identifying the client for rate limiting. The remote address is used if not set, or if the
+     * header is missing from the request, which behind a proxy or a load balancer is the same for all the clients.
+     */
+    private String clientHeader;
+
+    /**
+     * Maximum number of clients to keep rate limiting state for before idle clients are evicted.
+     */
+    private int maxClients = 10000;
+
+    private Limits read = new Limits(64, 256, Duration.ofMillis(50), 0, 0);
+    private Limits write = new Limits(4, 16, Duration.ofMillis(100), 0, 0);
+    private Adaptive adaptive = new Adaptive();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limits {
+        /**
+         * Number of requests processed concurrently, the initial one for writes if the limit is adaptive.
+         */
+        private int concurrency;
+
+        /**
+         * Maximum number of requests waiting for a concurrency slot, excess requests are rejected immediately.
+         */
+        private int queueSize;
+
+        /**
+         * Maximum time a request waits for a concurrency slot before being rejected.
+         */
+        private Duration queueTimeout;
+
+        /**
+         * Sustained requests per second allowed per client, zero (the default) disables rate limiting.
+         */
+        private double rate;
+
+        /**
+         * Number of requests a client may burst above the sustained rate, defaults to one second worth of requests.
+         */
+        private int burst;
+    }
+
+    /**
+     * Adapting of the write concurrency limit to how much writes hold up reads.
+     */
+    @Data
+    public static class Adaptive {
+        /**
+         * Whether the write concurrency limit adapts at all.
+         */
+        private boolean enabled = true;
+
+        private int minWriteConcurrency = 1;
+
+        private int maxWriteConcurrency = 16;
+
+        /**
+         * Average read processing time above which the write concurrency limit is lowered.
+         */
+        private Duration readLatencyTarget = Duration.ofMillis(50);
+
+        /**
+         * Average time readers wait for writers to release the dictionary, above which the write concurrency limit is
+         * lowered.
+         */
+        private Duration lockWaitTarget = Duration.ofMillis(5);
+    }
+}
@@ -0,0 +1,115 @@
+package com.sdokara.ri.synonym;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of concurrently processed requests, with a bounded wait queue. Requests that find the queue full,
+ * or that wait longer than the queue timeout, are rejected instead of piling up. The limit may be changed at any time,
+ * see {@link AdaptiveWriteLimit}.
+ */
+class ConcurrencyLimiter {
+    private final int queueSize;
+    private final long queueTimeoutNanos;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int limit;
+    private int inFlight;
+    private int queued;
+
+    ConcurrencyLimiter(int limit, int queueSize, Duration queueTimeout) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be positive");
+        }
+        this.limit = limit;
+        this.queueSize = Math.max(0, queueSize);
+        this.queueTimeoutNanos = queueTimeout == null ? 0 : queueTimeout.toNanos();
+    }
+
+    /**
+     * Acquires a concurrency slot, waiting in the queue if none is available.
+     *
+     * @return {@code true} if the slot was acquired and must be {@linkplain #release() released}, {@code false} if the
+     * request was rejected
+     */
+    boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < limit) {
+                inFlight++;
+                return true;
+            }
+            if (queued >= queueSize) {
+                return false;
+            }
+            queued++;
+            try {
+                long nanos = queueTimeoutNanos;
+                while (inFlight >= limit) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a previously acquired slot.
+     *
+     * @return {@code true} if the limit was saturated before the release
+     */
+    boolean release() {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit;
+            inFlight--;
+            if (inFlight < limit) {
+                available.signal();
+            }
+            return saturated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the suggested number of seconds a rejected client should wait before retrying
+     */
+    long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(queueTimeoutNanos));
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setLimit(int limit) {
+        lock.lock();
+        try {
+            int previous = this.limit;
+            this.limit = limit;
+            if (limit > previous) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
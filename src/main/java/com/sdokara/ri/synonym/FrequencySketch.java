@@ -0,0 +1,97 @@
+package com.sdokara.ri.synonym;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A TinyLFU-style approximate access frequency counter: a count-min sketch of 4-bit counters, four per key, packed
+ * sixteen to a {@code long}. Once the number of recorded accesses reaches ten times the number of counters, all the
+ * counters are halved, so that the frequencies age and favor recent accesses. <br/>
+ * Thread-safe, increments are lock-free and may rarely be lost under contention, which is fine for an estimate.
+ */
+class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param expectedKeys the expected number of distinct keys
+     */
+    FrequencySketch(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(64, Math.min(expectedKeys / 4, 1 << 26)) - 1) << 1;
+        this.table = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.sampleSize = capacity * 10;
+    }
+
+    /**
+     * @return the estimated number of accesses to {@code key}, from 0 to 15
+     */
+    int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            frequency = Math.min(frequency, (int) (table.get(index(hash)) >>> shift(hash)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access to {@code key}.
+     */
+    void increment(long key) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            int index = index(hash);
+            int shift = shift(hash);
+            long value;
+            do {
+                value = table.get(index);
+                if (((value >>> shift) & MAX_COUNT) == MAX_COUNT) {
+                    break;
+                }
+            } while (!table.compareAndSet(index, value, value + (1L << shift)));
+            added |= ((value >>> shift) & MAX_COUNT) != MAX_COUNT;
+        }
+        if (added && size.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+        size.set(0);
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            long value;
+            do {
+                value = table.get(i);
+            } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+        }
+        size.updateAndGet(s -> s / 2);
+    }
+
+    private int index(long hash) {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static int shift(long hash) {
+        return ((int) hash & 15) << 2;
+    }
+
+    private static long hash(long key, int i) {
+        long hash = (key + SEEDS[i]) * SEEDS[i];
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,57 @@
+package com.sdokara.ri.synonym;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage of synonym sets keyed by their ID, used by {@link SynonymServiceImpl}. Stored sets are modified in place by
+ * the service, which calls {@link #put(long, Set)} again after each modification, and copies them before handing them
+ * out. <br/>
+ * Implementations must support concurrent {@link #get(long)} and {@link #values()} calls, while the mutating methods
+ * are only called while no other method is running, as guarded by the service's read-write lock.
+ */
+interface GroupStore extends Closeable {
+    /**
+     * @param key the key of the synonym set
+     * @return the synonym set, or {@code null} if there is none for {@code key}
+     */
+    Set<String> get(long key);
+
+    /**
+     * Like {@link #get(long)}, but for writers that are about to replace the set: the access is not counted towards
+     * the set's popularity, nor does it move the set between storage tiers.
+     *
+     * @param key the key of the synonym set
+     * @return the synonym set, or {@code null} if there is none for {@code key}
+     */
+    Set<String> peek(long key);
+
+    /**
+     * Stores the synonym set, replacing the existing one if any.
+     *
+     * @param key   the key of the synonym set
+     * @param words the synonym set
+     */
+    void put(long key, Set<String> words);
+
+    /**
+     * @param key the key of the synonym set
+     * @return the removed synonym set, or {@code null} if there was none for {@code key}
+     */
+    Set<String> remove(long key);
+
+    /**
+     * @return a list of all the synonym sets
+     */
+    List<Set<String>> values();
+
+    /**
+     * Removes all the synonym sets.
+     */
+    void clear();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,40 @@
+package com.sdokara.ri.synonym;
+
+import java.util.*;
+
+/**
+ * A {@link GroupStore} that keeps all the synonym sets on the heap, in an ordinary {@link HashMap}.
+ */
+class HeapGroupStore implements GroupStore {
+    private final Map<Long, Set<String>> keyWordsMap = new HashMap<>();
+
+    @Override
+    public Set<String> get(long key) {
+        return keyWordsMap.get(key);
+    }
+
+    @Override
+    public Set<String> peek(long key) {
+        return keyWordsMap.get(key);
+    }
+
+    @Override
+    public void put(long key, Set<String> words) {
+        keyWordsMap.put(key, words);
+    }
+
+    @Override
+    public Set<String> remove(long key) {
+        return keyWordsMap.remove(key);
+    }
+
+    @Override
+    public List<Set<String>> values() {
+        return new ArrayList<>(keyWordsMap.values());
+    }
+
+    @Override
+    public void clear() {
+        keyWordsMap.clear();
+    }
+}
@@ -0,0 +1,20 @@
+package com.sdokara.ri.synonym;
+
+/**
+ * Tracks how long readers of the {@link SynonymServiceImpl} wait for its read lock, that is how long they are held up
+ * by writers, as a {@link MovingAverage}.
+ */
+class LockWaitMonitor {
+    private final MovingAverage readWait = new MovingAverage();
+
+    void recordReadWait(long nanos) {
+        readWait.record(nanos);
+    }
+
+    /**
+     * @return the average time readers recently waited for the read lock, in nanoseconds
+     */
+    long getReadWaitNanos() {
+        return readWait.getNanos();
+    }
+}
@@ -0,0 +1,30 @@
+package com.sdokara.ri.synonym;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An exponentially weighted moving average of durations, so that a single outlier, such as one held up by a garbage
+ * collection pause, cannot push it over a target on its own. The average is considered stale, and reported as zero,
+ * once no sample has been recorded for a second.
+ */
+class MovingAverage {
+    // each sample weighs 1/8 of the average
+    private static final int WEIGHT_SHIFT = 3;
+    private static final long STALE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong averageNanos = new AtomicLong();
+    private volatile long recordedNanos = System.nanoTime() - STALE_NANOS;
+
+    void record(long nanos) {
+        averageNanos.accumulateAndGet(nanos, (average, sample) -> average + ((sample - average) >> WEIGHT_SHIFT));
+        recordedNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the recent average, in nanoseconds
+     */
+    long getNanos() {
+        return System.nanoTime() - recordedNanos < STALE_NANOS ? averageNanos.get() : 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.sdokara.ri.synonym;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client token bucket rate limiter. Each client is allowed a sustained rate of requests per second, plus a burst.
+ * At most {@code maxClients} clients are tracked. Once that many are, a tenth of them is evicted in one go, idle ones
+ * (those whose bucket is full again) first, so that the cost of scanning the buckets is amortized over the clients
+ * admitted afterwards. An evicted client that is still active merely starts over with a full bucket.
+ */
+class RateLimiter {
+    private final double rate;
+    private final double burst;
+    private final int maxClients;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    RateLimiter(double rate, int burst, int maxClients) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        if (maxClients < 1) {
+            throw new IllegalArgumentException("Maximum number of clients must be positive");
+        }
+        this.rate = rate;
+        this.burst = burst > 0 ? burst : Math.max(1, rate);
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @param client the client identifier
+     * @return zero if the request is allowed, otherwise the number of nanoseconds until a token becomes available
+     */
+    long tryAcquire(String client) {
+        long now = System.nanoTime();
+        Bucket bucket = buckets.get(client);
+        if (bucket == null) {
+            bucket = admit(client, now);
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    /**
+     * Adds a bucket for a new client, serialized so that the number of buckets never exceeds the maximum.
+     */
+    private synchronized Bucket admit(String client, long now) {
+        Bucket bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            evict(now);
+        }
+        bucket = new Bucket(burst, now);
+        buckets.put(client, bucket);
+        return bucket;
+    }
+
+    private void evict(long now) {
+        int target = maxClients - Math.max(1, maxClients / 10);
+        for (Iterator<Bucket> it = buckets.values().iterator(); buckets.size() > target && it.hasNext(); ) {
+            if (it.next().isFull(now)) {
+                it.remove();
+            }
+        }
+        for (Iterator<Bucket> it = buckets.values().iterator(); buckets.size() > target && it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    int getClientCount() {
+        return buckets.size();
+    }
+
+    private class Bucket {
+        private double tokens;
+        private long refilledNanos;
+
+        private Bucket(double tokens, long refilledNanos) {
+            this.tokens = tokens;
+            this.refilledNanos = refilledNanos;
+        }
+
+        synchronized long tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            if (now > refilledNanos) {
+                tokens = Math.min(burst, tokens + (now - refilledNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+                refilledNanos = now;
+            }
+        }
+    }
+}
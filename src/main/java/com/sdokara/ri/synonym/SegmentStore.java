@@ -0,0 +1,317 @@
+package com.sdokara.ri.synonym;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only on-disk storage of synonym sets, split into segment files of a bounded size, kept in a directory of its
+ * own that is created under the given parent directory and deleted on {@link #close()}. Each stored set is
+ * addressed by a {@code long} location, combining the segment ID and the offset within the segment. Freed records
+ * are not reclaimed in place: a segment file is deleted once all of its records are freed, and the owner is expected
+ * to relocate the records of {@linkplain #sparseSegments() sparse segments} to reclaim the rest. <br/>
+ * A record is stored as its length, followed by the number of words, followed by each word as its length and its
+ * UTF-8 bytes. <br/>
+ * {@link #read(long)} may be called concurrently with anything, as a segment being read is pinned so that it is not
+ * deleted before the read completes. Other access must be guarded by the owner's lock.
+ */
+class SegmentStore {
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".dat";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private Segment active;
+    private int nextId;
+    private long liveBytes;
+    private long totalBytes;
+
+    SegmentStore(Path parent, long segmentSize) {
+        if (segmentSize <= 0 || segmentSize > OFFSET_MASK) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        try {
+            // a directory of its own, so that other instances sharing the parent cannot collide with this one
+            this.directory = Files.createTempDirectory(Files.createDirectories(parent), "segments-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the location of the stored set
+     */
+    long write(Set<String> words) {
+        ByteBuffer buffer = serialize(words);
+        int length = buffer.remaining();
+        if (active == null || (active.size > 0 && active.size + length > segmentSize)) {
+            if (active != null && active.liveBytes == 0) {
+                retire(active);
+            }
+            active = open();
+        }
+        long offset = active.size;
+        active.access(channel -> {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        });
+        active.size += length;
+        active.liveBytes += length;
+        liveBytes += length;
+        totalBytes += length;
+        return ((long) active.id << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * Reads a stored set. Records are never overwritten, so a successful read always returns what was written to the
+     * location, even if it has been freed since.
+     *
+     * @return a new synonym set, or {@code null} if the segment has been deleted, which can only happen to a reader not
+     * holding the owner's lock if the set has since been freed
+     */
+    Set<String> read(long location) {
+        Segment segment = segments.get(segmentId(location));
+        if (segment == null || !segment.pin()) {
+            return null;
+        }
+        try {
+            long offset = location & OFFSET_MASK;
+            ByteBuffer buffer = readFully(segment, offset, ByteBuffer.allocate(Integer.BYTES));
+            buffer = readFully(segment, offset + Integer.BYTES, ByteBuffer.allocate(buffer.getInt() - Integer.BYTES));
+            int count = buffer.getInt();
+            Set<String> words = new HashSet<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                words.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return words;
+        } finally {
+            segment.unpin();
+        }
+    }
+
+    /**
+     * Marks a stored set as garbage, deleting its segment if nothing else is stored in it.
+     */
+    void free(long location) {
+        Segment segment = segment(location);
+        int length = readFully(segment, location & OFFSET_MASK, ByteBuffer.allocate(Integer.BYTES)).getInt();
+        segment.liveBytes -= length;
+        liveBytes -= length;
+        if (segment.liveBytes == 0 && segment != active) {
+            retire(segment);
+        }
+    }
+
+    /**
+     * @return the IDs of the segments less than half full of live records, excluding the segment being appended to
+     */
+    Set<Integer> sparseSegments() {
+        Set<Integer> ids = new HashSet<>();
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.liveBytes * 2 < segment.size) {
+                ids.add(segment.id);
+            }
+        }
+        return ids;
+    }
+
+    static int segmentId(long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    long getGarbageBytes() {
+        return totalBytes - liveBytes;
+    }
+
+    long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Deletes all the segments.
+     */
+    void clear() {
+        for (Segment segment : segments.values()) {
+            segment.unpin();
+        }
+        segments.clear();
+        active = null;
+        liveBytes = 0;
+        totalBytes = 0;
+    }
+
+    /**
+     * Deletes all the segments along with the directory.
+     */
+    void close() {
+        clear();
+        try {
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment open() {
+        int id = nextId++;
+        try {
+            Path file = directory.resolve(PREFIX + id + SUFFIX);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Segment segment = new Segment(id, file, channel);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void retire(Segment segment) {
+        segments.remove(segment.id);
+        totalBytes -= segment.size;
+        segment.unpin();
+    }
+
+    private Segment segment(long location) {
+        Segment segment = segments.get(segmentId(location));
+        if (segment == null) {
+            throw new IllegalStateException("No segment for location " + location);
+        }
+        return segment;
+    }
+
+    private static ByteBuffer readFully(Segment segment, long offset, ByteBuffer buffer) {
+        segment.access(channel -> {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IllegalStateException("Unexpected end of segment " + segment.file);
+                }
+            }
+        });
+        return buffer.flip();
+    }
+
+    private static ByteBuffer serialize(Set<String> words) {
+        List<byte[]> encoded = new ArrayList<>(words.size());
+        int length = 2 * Integer.BYTES;
+        for (String word : words) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            length += Integer.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length);
+        buffer.putInt(encoded.size());
+        for (byte[] bytes : encoded) {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        return buffer.flip();
+    }
+
+
+    /**
+     * A segment file, reference counted: the store holds one reference until the segment is retired, and each read
+     * holds another one, the file being deleted once the last one is released. <br/>
+     * As a {@link FileChannel} is closed for all the threads using it when any of them is interrupted, the channel is
+     * reopened by whichever thread finds it closed, so that an interrupt fails only the operation it interrupted.
+     */
+    private static class Segment {
+        private final int id;
+        private final Path file;
+        private volatile FileChannel channel;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private long size;
+        private long liveBytes;
+
+        private Segment(int id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        /**
+         * Runs an I/O operation on the channel, which must be called while holding a reference to the segment. The
+         * operation is retried on a reopened channel if another thread closed it by being interrupted, and fails if
+         * the calling thread is the interrupted one.
+         */
+        private void access(ChannelOperation operation) {
+            for (;;) {
+                FileChannel channel = this.channel;
+                try {
+                    operation.run(channel);
+                    return;
+                } catch (ClosedChannelException e) {
+                    reopen(channel);
+                    if (e instanceof ClosedByInterruptException) {
+                        throw new UncheckedIOException(e);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private synchronized void reopen(FileChannel closed) {
+            if (channel == closed) {
+                try {
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /**
+         * @return {@code false} if the segment has already been deleted
+         */
+        private boolean pin() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void unpin() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface ChannelOperation {
+        void run(FileChannel channel) throws IOException;
+    }
+}
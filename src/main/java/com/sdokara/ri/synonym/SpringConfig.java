@@ -1,5 +1,8 @@
 package com.sdokara.ri.synonym;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,6 +14,7 @@ import java.util.stream.Stream;
 import static org.springframework.http.HttpMethod.*;
 
 @Configuration
+@EnableConfigurationProperties({AdmissionProperties.class, StorageProperties.class})
 public class SpringConfig {
     @Bean
     public WebMvcConfigurer corsConfigurer() {
@@ -24,4 +28,31 @@ public class SpringConfig {
             }
         };
     }
+
+    @Bean
+    public LockWaitMonitor lockWaitMonitor() {
+        return new LockWaitMonitor();
+    }
+
+    @Bean
+    public GroupStore groupStore(StorageProperties properties) {
+        switch (properties.getMode()) {
+            case TIERED:
+                return new TieredGroupStore(properties.getHeapBudget().toBytes(), properties.getDirectory(),
+                        properties.getSegmentSize().toBytes(), properties.getExpectedGroups());
+            case HEAP:
+            default:
+                return new HeapGroupStore();
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "synonyms.admission", name = "enabled", matchIfMissing = true)
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionProperties properties,
+                                                                   LockWaitMonitor lockWaitMonitor) {
+        FilterRegistrationBean<AdmissionFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionFilter(properties, lockWaitMonitor));
+        registration.addUrlPatterns("/synonyms", "/synonyms/*");
+        return registration;
+    }
 }
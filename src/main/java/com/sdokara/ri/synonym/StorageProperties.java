@@ -0,0 +1,50 @@
+package com.sdokara.ri.synonym;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Synonym set storage settings. In {@link Mode#TIERED} mode, rarely queried synonym sets are spilled to disk once the
+ * heap budget is exceeded, while the word index always stays on the heap.
+ */
+@Data
+@ConfigurationProperties(prefix = "synonyms.storage")
+public class StorageProperties {
+    private Mode mode = Mode.HEAP;
+
+    /**
+     * Estimated heap size the resident synonym sets may take in tiered mode, not including the word index.
+     */
+    private DataSize heapBudget = DataSize.ofMegabytes(256);
+
+    /**
+     * Parent directory of the on-disk segments in tiered mode. Each instance keeps its segments in a subdirectory of
+     * its own, which is deleted on shutdown.
+     */
+    private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "ri-synonym-service");
+
+    /**
+     * Maximum size of a single on-disk segment in tiered mode.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Expected number of synonym sets, used to size the access frequency sketch in tiered mode.
+     */
+    private int expectedGroups = 1_000_000;
+
+    public enum Mode {
+        /**
+         * All synonym sets are kept on the heap.
+         */
+        HEAP,
+        /**
+         * Frequently queried synonym sets are kept on the heap, the rest is spilled to disk.
+         */
+        TIERED
+    }
+}
@@ -34,6 +34,11 @@ public class SynonymController {
         return ResponseEntity.ok(synonymService.get(word));
     }
 
+    @GetMapping("/stats")
+    public ResponseEntity<SynonymStats> getStats() {
+        return ResponseEntity.ok(synonymService.getStats());
+    }
+
     @DeleteMapping
     public ResponseEntity<?> clear() {
         synonymService.clear();
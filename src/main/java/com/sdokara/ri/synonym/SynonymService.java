@@ -14,10 +14,12 @@ public interface SynonymService {
     void add(String word1, String word2) throws IllegalArgumentException;
 
     /**
-     * Adds all the words as synonyms in the dictionary. Words are case-insensitive.
+     * Adds all the words as synonyms in the dictionary. Words are case-insensitive. The words are added atomically,
+     * either all of them or none.
      *
      * @param words the words
-     * @throws IllegalArgumentException if duplicate words are found
+     * @throws IllegalArgumentException if fewer than two words are passed, if any of the words is null or blank, or if
+     *                                  duplicate words are found
      */
     void add(String... words) throws IllegalArgumentException;
 
@@ -32,6 +34,11 @@ public interface SynonymService {
      */
     List<Set<String>> getAll();
 
+    /**
+     * @return the dictionary statistics as of the last completed write, without traversing nor locking the dictionary
+     */
+    SynonymStats getStats();
+
     /**
      * Clears the entire dictionary.
      */
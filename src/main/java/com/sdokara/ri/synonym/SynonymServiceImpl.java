@@ -3,7 +3,6 @@ package com.sdokara.ri.synonym;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -13,14 +12,20 @@ import java.util.stream.Collectors;
 /**
  * A naive implementation of a {@link SynonymService} that uses translation. Each word that is unique by meaning is
  * assigned a unique ID of type {@link Long} as its <i>machine meaning</i>. Each word in a synonym set therefore gets
- * assigned the same ID, and gets stored in the same {@link Set} in a {@link Map} entry keyed by that ID. <br/>
+ * assigned the same ID, and gets stored in the same {@link Set} in a {@link GroupStore} entry keyed by that ID. <br/>
  * Implementation is thread-safe, with high performance penalties on inserts, but fast reads.
  */
 @Service
 public class SynonymServiceImpl implements SynonymService {
-    private final Map<Long, Set<String>> keyWordsMap = new HashMap<>();
-    private final Map<String, Long> wordKeyMap = new HashMap<>();
+    private static final int STATS_TOP_K = 10;
+
+    private final GroupStore keyWordsStore;
+    private final LockWaitMonitor lockWaitMonitor;
+    private final WordIndex wordIndex = new WordIndex();
     private final AtomicLong sequence = new AtomicLong();
+    private final SynonymStatistics statistics = new SynonymStatistics(STATS_TOP_K);
+    // published at the end of every write, so that reading the statistics never waits for the lock
+    private volatile SynonymStats stats = statistics.snapshot();
 
     /* Having concurrent hashmaps is not enough to ensure thread-safety as the methods perform multiple operations
        with multiple entries within the maps, so the solution here is to use a read-write lock with ordinary maps. */
@@ -28,6 +33,11 @@ public class SynonymServiceImpl implements SynonymService {
     private final Lock readLock = lock.readLock();
     private final Lock writeLock = lock.writeLock();
 
+    public SynonymServiceImpl(GroupStore keyWordsStore, LockWaitMonitor lockWaitMonitor) {
+        this.keyWordsStore = keyWordsStore;
+        this.lockWaitMonitor = lockWaitMonitor;
+    }
+
     @Override
     public void add(String word1, String word2) throws IllegalArgumentException {
         if (word1 == null || word2 == null || word1.isBlank() || word2.isBlank()) {
@@ -38,27 +48,7 @@ public class SynonymServiceImpl implements SynonymService {
         if (word1.equals(word2)) {
             throw new IllegalArgumentException("A word cannot be a synonym of itself");
         }
-
-        writeLock.lock();
-        try {
-            Long key1 = wordKeyMap.get(word1);
-            Long key2 = wordKeyMap.get(word2);
-            if (key1 == null && key2 == null) {
-                // neither word1 nor word2 are present in the dictionary
-                insert(word1, word2);
-            } else if (key1 != null && key2 == null) {
-                // word1 is present, but word2 is not
-                link(key1, word2);
-            } else if (key1 == null) {
-                // word1 is not present, but word2 is (the condition key2 != null is redundant)
-                link(key2, word1);
-            } else if (!key1.equals(key2)) {
-                // both words are present with different keys, so the two synonym sets must be merged
-                relink(word1, word2);
-            }
-        } finally {
-            writeLock.unlock();
-        }
+        merge(List.of(word1, word2));
     }
 
     @Override
@@ -66,50 +56,85 @@ public class SynonymServiceImpl implements SynonymService {
         if (words == null || words.length < 2) {
             throw new IllegalArgumentException("At least two words must be passed");
         }
-        words = Arrays.stream(words).map(String::toLowerCase).toArray(String[]::new);
-        Set<String> set = new HashSet<>();
+        Set<String> set = new LinkedHashSet<>(words.length * 4 / 3 + 1);
         for (String word : words) {
+            if (word == null || word.isBlank()) {
+                throw new IllegalArgumentException("Words cannot be null nor blank");
+            }
+            word = word.toLowerCase();
             if (!set.add(word)) {
                 throw new IllegalArgumentException("Duplicate word found: " + word);
             }
         }
-        for (int i = 0; i < words.length - 1; i++) {
-            add(words[i], words[i + 1]);
-        }
+        merge(set);
     }
 
-    private void insert(String word1, String word2) {
-        Long key = nextKey();
-        link(key, word1);
-        link(key, word2);
+    /**
+     * Makes all the {@code words} synonyms of each other within a single critical section, so that readers either
+     * see none or all of the change. All the synonym sets the words already belong to are resolved up front and merged
+     * into the largest one in place, so the cost is proportional to the number of words added or moved, regardless
+     * of the size of the largest set.
+     */
+    private void merge(Collection<String> words) {
+        writeLock.lock();
+        try {
+            Long target = null;
+            Set<Long> keys = new HashSet<>();
+            List<String> unlinked = new ArrayList<>(words.size());
+            for (String word : words) {
+                Long key = wordIndex.get(word);
+                if (key == null) {
+                    unlinked.add(word);
+                } else if (keys.add(key) && (target == null || statistics.size(key) > statistics.size(target))) {
+                    target = key;
+                }
+            }
+            if (target == null) {
+                // none of the words are present in the dictionary
+                insert(unlinked);
+            } else if (keys.size() == 1) {
+                // all the present words are already synonyms, only the new words (if any) must join them
+                if (!unlinked.isEmpty()) {
+                    link(target, unlinked);
+                }
+            } else {
+                // present words belong to different synonym sets, so the sets must be merged
+                keys.remove(target);
+                relink(target, keys, unlinked);
+            }
+            stats = statistics.snapshot();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
-    private void link(Long key, String word) {
-        wordKeyMap.put(word, key);
-        keyWordsMap.compute(key, (l, words) -> {
-            if (words == null) {
-                /* Copy-on-write synchronization: implemented so that the reading threads not throw concurrent
-                   modification exceptions - this causes heavy performance penalties if synonym sets become extremely
-                   large, but in real life, the odds for that are pretty slim. */
-                words = new CopyOnWriteArraySet<>();
-            }
-            words.add(word);
-            return words;
-        });
+    private void insert(Collection<String> words) {
+        link(nextKey(), words);
     }
 
-    private void relink(String word1, String word2) {
-        Long key1 = wordKeyMap.remove(word1);
-        Long key2 = wordKeyMap.remove(word2);
-        Set<String> words1 = keyWordsMap.remove(key1);
-        Set<String> words2 = keyWordsMap.remove(key2);
+    private void link(Long key, Collection<String> words) {
+        for (String word : words) {
+            wordIndex.put(word, key);
+        }
+        /* Synonym sets are modified in place under the write lock, and never leave the read lock without being
+           copied, so that the reading threads not throw concurrent modification exceptions. */
+        Set<String> group = keyWordsStore.peek(key);
+        if (group == null) {
+            group = new HashSet<>(words);
+        } else {
+            group.addAll(words);
+        }
+        keyWordsStore.put(key, group);
+        statistics.resized(key, group.size(), words.iterator().next());
+    }
 
-        words1.addAll(words2);
-        Long key = nextKey();
-        for (String word : words1) {
-            wordKeyMap.put(word, key);
+    private void relink(Long target, Set<Long> keys, Collection<String> words) {
+        List<String> moved = new ArrayList<>(words);
+        for (Long key : keys) {
+            moved.addAll(keyWordsStore.remove(key));
+            statistics.resized(key, 0, null);
         }
-        keyWordsMap.put(key, words1);
+        link(target, moved);
     }
 
     private long nextKey() {
@@ -119,14 +144,14 @@ public class SynonymServiceImpl implements SynonymService {
 
     @Override
     public Set<String> get(String word) {
-        readLock.lock();
+        lockRead();
         try {
             word = word.toLowerCase();
-            Long key = wordKeyMap.get(word);
+            Long key = wordIndex.get(word);
             if (key == null) {
                 return Collections.emptySet();
             }
-            Set<String> words = new HashSet<>(keyWordsMap.get(key));
+            Set<String> words = new HashSet<>(keyWordsStore.get(key));
             if (!words.isEmpty()) {
                 words.remove(word);
             }
@@ -138,22 +163,38 @@ public class SynonymServiceImpl implements SynonymService {
 
     @Override
     public List<Set<String>> getAll() {
-        readLock.lock();
+        lockRead();
         try {
-            return keyWordsMap.values().stream()
-                    .map(Collections::unmodifiableSet)
-                    .collect(Collectors.toList());
+            return keyWordsStore.values().stream()
+                    .map(words -> Collections.unmodifiableSet(new HashSet<>(words)))
+                    .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
         } finally {
             readLock.unlock();
         }
     }
 
+    @Override
+    public SynonymStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Acquires the read lock, recording how long it took, which is the time the reader was held up by writers.
+     */
+    private void lockRead() {
+        long start = System.nanoTime();
+        readLock.lock();
+        lockWaitMonitor.recordReadWait(System.nanoTime() - start);
+    }
+
     @Override
     public void clear() {
         writeLock.lock();
         try {
-            keyWordsMap.clear();
-            wordKeyMap.clear();
+            keyWordsStore.clear();
+            wordIndex.clear();
+            statistics.clear();
+            stats = statistics.snapshot();
         } finally {
             writeLock.unlock();
         }
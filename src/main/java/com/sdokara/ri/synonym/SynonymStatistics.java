@@ -0,0 +1,106 @@
+package com.sdokara.ri.synonym;
+
+import java.util.*;
+
+/**
+ * Dictionary statistics, maintained incrementally as synonym sets are created, resized and removed, so that taking a
+ * snapshot of them costs O(k) regardless of the dictionary size. Synonym sets are kept in a {@link TreeSet} ordered by
+ * size, so that every change costs O(log n) and the k largest sets are always at its head. <br/>
+ * Not thread-safe, access must be guarded by the owner's lock.
+ */
+class SynonymStatistics {
+    private static final Comparator<Group> BY_SIZE = Comparator.comparingInt((Group group) -> group.size).reversed()
+            .thenComparingLong(group -> group.key);
+
+    private final int topK;
+    private final Map<Long, Group> groups = new HashMap<>();
+    private final NavigableSet<Group> bySize = new TreeSet<>(BY_SIZE);
+    // bucket i counts the sets with sizes in (2^(i-1), 2^i]
+    private final long[] histogram = new long[Integer.SIZE];
+    private long wordCount;
+
+    SynonymStatistics(int topK) {
+        this.topK = topK;
+    }
+
+    /**
+     * Records a change in the size of a synonym set.
+     *
+     * @param key  the key of the synonym set
+     * @param size the new size of the set, zero if the set was removed
+     * @param word a word from the set, used to represent a newly created set
+     */
+    void resized(long key, int size, String word) {
+        Group old = groups.remove(key);
+        if (old != null) {
+            bySize.remove(old);
+            histogram[bucket(old.size)]--;
+            wordCount -= old.size;
+            word = old.word;
+        }
+        if (size > 0) {
+            Group group = new Group(key, size, word);
+            groups.put(key, group);
+            bySize.add(group);
+            histogram[bucket(size)]++;
+            wordCount += size;
+        }
+    }
+
+    /**
+     * @return the size of the synonym set, zero if there is none for {@code key}
+     */
+    int size(long key) {
+        Group group = groups.get(key);
+        return group == null ? 0 : group.size;
+    }
+
+    void clear() {
+        groups.clear();
+        bySize.clear();
+        Arrays.fill(histogram, 0);
+        wordCount = 0;
+    }
+
+    SynonymStats snapshot() {
+        Map<String, Long> sizeHistogram = new LinkedHashMap<>();
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                sizeHistogram.put(label(i), histogram[i]);
+            }
+        }
+        List<SynonymStats.Group> largestGroups = new ArrayList<>(Math.min(topK, bySize.size()));
+        for (Group group : bySize) {
+            if (largestGroups.size() >= topK) {
+                break;
+            }
+            largestGroups.add(new SynonymStats.Group(group.word, group.size));
+        }
+        return new SynonymStats(wordCount, groups.size(), Collections.unmodifiableMap(sizeHistogram),
+                Collections.unmodifiableList(largestGroups));
+    }
+
+    private static int bucket(int size) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private static String label(int bucket) {
+        if (bucket < 2) {
+            return Integer.toString(1 << bucket);
+        }
+        return ((1L << (bucket - 1)) + 1) + "-" + (1L << bucket);
+    }
+
+
+    private static class Group {
+        private final long key;
+        private final int size;
+        private final String word;
+
+        private Group(long key, int size, String word) {
+            this.key = key;
+            this.size = size;
+            this.word = word;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.sdokara.ri.synonym;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A point-in-time snapshot of the dictionary statistics.
+ */
+@Value
+public class SynonymStats {
+    /**
+     * Number of words in the dictionary.
+     */
+    long wordCount;
+
+    /**
+     * Number of synonym sets in the dictionary.
+     */
+    long groupCount;
+
+    /**
+     * Number of synonym sets by size range, in ascending order of size, with power-of-two range bounds; empty ranges
+     * are omitted.
+     */
+    Map<String, Long> sizeHistogram;
+
+    /**
+     * The largest synonym sets, in descending order of size.
+     */
+    List<Group> largestGroups;
+
+    @Value
+    public static class Group {
+        /**
+         * A word from the synonym set, by which the entire set can be looked up.
+         */
+        String word;
+
+        int size;
+    }
+}
@@ -0,0 +1,22 @@
+package com.sdokara.ri.synonym;
+
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the dictionary statistics under {@code synonyms} in the actuator {@code info} endpoint.
+ */
+@Component
+public class SynonymStatsInfoContributor implements InfoContributor {
+    private final SynonymService synonymService;
+
+    public SynonymStatsInfoContributor(SynonymService synonymService) {
+        this.synonymService = synonymService;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        builder.withDetail("synonyms", synonymService.getStats());
+    }
+}
@@ -0,0 +1,393 @@
+package com.sdokara.ri.synonym;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link GroupStore} that keeps frequently queried synonym sets on the heap, within an estimated heap budget, and
+ * spills the rest to a {@link SegmentStore} on disk, keeping only their locations on the heap. <br/>
+ * Accesses are counted in a {@link FrequencySketch}. A cold set is faulted back onto the heap on access only if it is
+ * queried more frequently than the resident sets it would displace (TinyLFU admission), which are chosen as the least
+ * frequently queried out of a small sample, taken by sweeping the resident sets like a clock hand. <br/>
+ * Sets are read without locking, cold ones included: reading from disk needs no lock, as records are never
+ * overwritten and the segments being read are pinned. Changes of state are guarded by a lock of the store, which
+ * readers only try to take to promote a set, leaving it cold until its next access if the lock is busy. Sparse segments
+ * are compacted in the background, in small batches, so that neither readers nor writers wait for it.
+ */
+class TieredGroupStore implements GroupStore {
+    private static final int SAMPLE_SIZE = 8;
+    private static final int COMPACTION_BATCH_SIZE = 64;
+    /* Rough heap footprint of a synonym set and each word in it, as a HashSet of Latin-1 Strings of about 16
+       characters, so that estimating does not need to traverse the set. The Strings are held by the set alone, as the
+       WordIndex keeps the words in a compact form of its own. */
+    private static final long BYTES_PER_GROUP = 64;
+    private static final long BYTES_PER_WORD = 112;
+
+    private final long heapBudget;
+    private final FrequencySketch sketch;
+    private final SegmentStore segments;
+    private final Map<Long, Resident> resident = new ConcurrentHashMap<>();
+    private final Map<Long, Long> cold = new ConcurrentHashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "synonym-segment-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private long residentBytes;
+    private Iterator<Map.Entry<Long, Resident>> hand = Collections.emptyIterator();
+
+    TieredGroupStore(long heapBudget, Path directory, long segmentSize, int expectedGroups) {
+        this.heapBudget = heapBudget;
+        this.sketch = new FrequencySketch(expectedGroups);
+        this.segments = new SegmentStore(directory, segmentSize);
+    }
+
+    @Override
+    public Set<String> get(long key) {
+        sketch.increment(key);
+        for (;;) {
+            Resident hot = resident.get(key);
+            if (hot != null) {
+                return hot.words;
+            }
+            Long location = cold.get(key);
+            if (location == null) {
+                // the set is either moving between the tiers or does not exist, which only the lock can tell apart
+                lock.lock();
+                try {
+                    hot = resident.get(key);
+                    if (hot != null) {
+                        return hot.words;
+                    }
+                    location = cold.get(key);
+                    if (location == null) {
+                        return null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            Set<String> words = segments.read(location);
+            if (words != null) {
+                promote(key, location, words);
+                return words;
+            }
+            // the segment was deleted after the set had been promoted or relocated, so look it up again
+        }
+    }
+
+    @Override
+    public Set<String> peek(long key) {
+        lock.lock();
+        try {
+            Resident hot = resident.get(key);
+            if (hot != null) {
+                return hot.words;
+            }
+            Long location = cold.get(key);
+            return location == null ? null : segments.read(location);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(long key, Set<String> words) {
+        lock.lock();
+        try {
+            Long location = cold.remove(key);
+            if (location != null) {
+                segments.free(location);
+            }
+            long bytes = estimate(words);
+            if (bytes > heapBudget) {
+                // a set that could never fit goes straight to disk, rather than displacing every other set first
+                cold.put(key, segments.write(words));
+                Resident old = resident.remove(key);
+                if (old != null) {
+                    residentBytes -= old.bytes;
+                }
+            } else {
+                Resident old = resident.put(key, new Resident(words, bytes));
+                residentBytes += bytes - (old == null ? 0 : old.bytes);
+                evictToBudget(key);
+            }
+            scheduleCompaction();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> remove(long key) {
+        lock.lock();
+        try {
+            Resident hot = resident.remove(key);
+            if (hot != null) {
+                residentBytes -= hot.bytes;
+                return hot.words;
+            }
+            Long location = cold.remove(key);
+            if (location == null) {
+                return null;
+            }
+            Set<String> words = segments.read(location);
+            segments.free(location);
+            scheduleCompaction();
+            return words;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Set<String>> values() {
+        lock.lock();
+        try {
+            List<Set<String>> values = new ArrayList<>(resident.size() + cold.size());
+            for (Resident hot : resident.values()) {
+                values.add(hot.words);
+            }
+            for (Long location : cold.values()) {
+                values.add(segments.read(location));
+            }
+            return values;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            resident.clear();
+            cold.clear();
+            segments.clear();
+            sketch.clear();
+            residentBytes = 0;
+            hand = Collections.emptyIterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        // not interrupted, as that would close the segment files under a compaction, but stopped after its batch
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            resident.clear();
+            cold.clear();
+            segments.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getResidentBytes() {
+        lock.lock();
+        try {
+            return residentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getResidentCount() {
+        return resident.size();
+    }
+
+    int getColdCount() {
+        lock.lock();
+        try {
+            return cold.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a cold set that has just been read onto the heap, if it is admitted. Readers do not wait for each other to
+     * do so: if the lock is busy, the set simply stays cold until its next access.
+     */
+    private void promote(long key, long location, Set<String> words) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            Long current = cold.get(key);
+            if (current == null || current != location) {
+                // promoted or relocated in the meantime
+                return;
+            }
+            long bytes = estimate(words);
+            if (admit(key, bytes)) {
+                // the set must be readable from the heap before it disappears from disk, as reads are not locked
+                resident.put(key, new Resident(words, bytes));
+                cold.remove(key);
+                residentBytes += bytes;
+                segments.free(location);
+                scheduleCompaction();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes room for a cold set, evicting resident sets that are queried less frequently. All the victims are chosen
+     * before any is evicted, so that nothing is evicted unless the set is admitted.
+     *
+     * @return {@code true} if the set fits within the heap budget
+     */
+    private boolean admit(long key, long bytes) {
+        if (bytes > heapBudget) {
+            return false;
+        }
+        int frequency = sketch.frequency(key);
+        Map<Long, Resident> victims = new HashMap<>();
+        long freeBytes = heapBudget - residentBytes;
+        while (freeBytes < bytes) {
+            Map.Entry<Long, Resident> victim = sampleVictim(key, victims.keySet());
+            if (victim == null || sketch.frequency(victim.getKey()) >= frequency) {
+                return false;
+            }
+            victims.put(victim.getKey(), victim.getValue());
+            freeBytes += victim.getValue().bytes;
+        }
+        victims.forEach(this::evict);
+        return true;
+    }
+
+    /**
+     * Evicts resident sets other than the one with the {@code exclude} key until within the heap budget, which that
+     * set must fit within on its own.
+     */
+    private void evictToBudget(long exclude) {
+        while (residentBytes > heapBudget) {
+            Map.Entry<Long, Resident> victim = sampleVictim(exclude, Collections.emptySet());
+            evict(victim.getKey(), victim.getValue());
+        }
+    }
+
+    /**
+     * @return the least frequently queried out of the next few resident sets, or {@code null} if there are no
+     * resident sets other than the one with the {@code exclude} key and the already {@code chosen} ones
+     */
+    private Map.Entry<Long, Resident> sampleVictim(long exclude, Set<Long> chosen) {
+        Map.Entry<Long, Resident> victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        boolean restarted = false;
+        for (int sampled = 0; sampled < SAMPLE_SIZE; ) {
+            if (!hand.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                restarted = true;
+                hand = resident.entrySet().iterator();
+                continue;
+            }
+            Map.Entry<Long, Resident> entry = hand.next();
+            // the iterator is weakly consistent, so it may return sets that have since been replaced or removed
+            if (entry.getKey() == exclude || chosen.contains(entry.getKey())
+                    || resident.get(entry.getKey()) != entry.getValue()) {
+                continue;
+            }
+            sampled++;
+            int frequency = sketch.frequency(entry.getKey());
+            if (frequency < victimFrequency) {
+                victim = entry;
+                victimFrequency = frequency;
+            }
+        }
+        return victim;
+    }
+
+    private void evict(long key, Resident hot) {
+        // the set must be readable from disk before it disappears from the heap, as reads are not locked
+        cold.put(key, segments.write(hot.words));
+        resident.remove(key);
+        residentBytes -= hot.bytes;
+    }
+
+    /**
+     * Schedules compaction once the garbage on disk outweighs both the live records and a segment.
+     */
+    private void scheduleCompaction() {
+        if (segments.getGarbageBytes() > Math.max(segments.getSegmentSize(), segments.getLiveBytes())
+                && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    /**
+     * Relocates the records of sparse segments, taking the lock for a small batch of records at a time. Records that
+     * have been freed or relocated since the batch was collected are skipped. Stops early if the store is closed.
+     */
+    private void compact() {
+        try {
+            Set<Integer> sparse;
+            lock.lock();
+            try {
+                sparse = segments.sparseSegments();
+            } finally {
+                lock.unlock();
+            }
+            List<Map.Entry<Long, Long>> records = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : cold.entrySet()) {
+                if (sparse.contains(SegmentStore.segmentId(entry.getValue()))) {
+                    records.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+            for (int i = 0; i < records.size() && !compactor.isShutdown(); i += COMPACTION_BATCH_SIZE) {
+                lock.lock();
+                try {
+                    for (Map.Entry<Long, Long> record : records.subList(i,
+                            Math.min(records.size(), i + COMPACTION_BATCH_SIZE))) {
+                        long location = record.getValue();
+                        Long current = cold.get(record.getKey());
+                        if (current != null && current == location) {
+                            cold.put(record.getKey(), segments.write(segments.read(location)));
+                            segments.free(location);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            compactionScheduled.set(false);
+        }
+    }
+
+    private static long estimate(Set<String> words) {
+        return BYTES_PER_GROUP + words.size() * BYTES_PER_WORD;
+    }
+
+
+    private static class Resident {
+        private final Set<String> words;
+        private final long bytes;
+
+        private Resident(Set<String> words, long bytes) {
+            this.words = words;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.sdokara.ri.synonym;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact map of words to the keys of their synonym sets, used by {@link SynonymServiceImpl}. Rather than a
+ * {@code HashMap<String, Long>}, which takes an entry, a {@link String} and a byte array per word, the words are stored
+ * back to back in a single byte array, UTF-8 encoded, and looked up by linear probing in a table of entry numbers.
+ * A word thus takes about 30 bytes more than its encoded length, counting the spare capacity of the arrays, and no
+ * object of its own, so that the index holds no reference to the words of the synonym sets, wherever those are
+ * stored. <br/>
+ * Words are only ever added or reassigned, never removed other than by {@link #clear()}. Concurrent lookups are safe
+ * while nothing is being put, as guarded by the service's read-write lock.
+ */
+class WordIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // the words back to back, the word of entry i being bytes[offsets[i]] up to bytes[offsets[i + 1]]
+    private byte[] bytes;
+    private int[] offsets;
+    private long[] keys;
+    // entry numbers plus one, zero marking an empty slot, at most three quarters full
+    private int[] table;
+    private int size;
+
+    WordIndex() {
+        clear();
+    }
+
+    /**
+     * @return the key of the synonym set of the {@code word}, or {@code null} if there is none
+     */
+    Long get(String word) {
+        byte[] encoded = word.getBytes(StandardCharsets.UTF_8);
+        int entry = table[slot(encoded)] - 1;
+        return entry < 0 ? null : keys[entry];
+    }
+
+    /**
+     * Maps the {@code word} to the key of its synonym set, replacing the key it was mapped to if any.
+     */
+    void put(String word, long key) {
+        byte[] encoded = word.getBytes(StandardCharsets.UTF_8);
+        int slot = slot(encoded);
+        int entry = table[slot] - 1;
+        if (entry >= 0) {
+            keys[entry] = key;
+            return;
+        }
+        entry = size++;
+        if (size == keys.length) {
+            offsets = Arrays.copyOf(offsets, keys.length * 2 + 1);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        int offset = offsets[entry];
+        if (bytes.length - offset < encoded.length) {
+            long capacity = Math.max((long) bytes.length * 2, (long) offset + encoded.length);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Word index is full");
+            }
+            bytes = Arrays.copyOf(bytes, (int) capacity);
+        }
+        System.arraycopy(encoded, 0, bytes, offset, encoded.length);
+        offsets[entry + 1] = offset + encoded.length;
+        keys[entry] = key;
+        table[slot] = entry + 1;
+        if (size * 4L > table.length * 3L) {
+            rehash(table.length * 2);
+        }
+    }
+
+    /**
+     * @return the number of words
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the words.
+     */
+    void clear() {
+        bytes = new byte[INITIAL_CAPACITY * 8];
+        offsets = new int[INITIAL_CAPACITY + 1];
+        keys = new long[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+        size = 0;
+    }
+
+    /**
+     * @return the slot of the table holding the entry of the {@code word}, or the empty slot to put it in
+     */
+    private int slot(byte[] word) {
+        int mask = table.length - 1;
+        for (int slot = hash(word, 0, word.length) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (entry < 0 || Arrays.equals(bytes, offsets[entry], offsets[entry + 1], word, 0, word.length)) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(bytes, offsets[entry], offsets[entry + 1]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+        this.table = table;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the bits, as linear probing is sensitive to clustered hashes
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,254 @@
+package com.sdokara.ri.synonym;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "synonyms.admission.client-header=X-Client-Id",
+        "synonyms.admission.write.rate=10",
+        "synonyms.admission.write.burst=10"
+})
+public class AdmissionTests {
+    private static final String CLIENT_HEADER = "X-Client-Id";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private FilterRegistrationBean<AdmissionFilter> admissionFilter;
+
+    @Autowired
+    private SynonymService synonymService;
+
+    @AfterEach
+    public void reset() {
+        synonymService.clear();
+    }
+
+    @Test
+    public void rateLimit() {
+        String client = UUID.randomUUID().toString();
+        List<ResponseEntity<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(post(client, makeWords(2)));
+        }
+
+        ResponseEntity<String> rejected = responses.stream()
+                .filter(response -> response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No request was rate limited"));
+        assertNotNull(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        // other clients are not affected
+        assertEquals(HttpStatus.NO_CONTENT, post(UUID.randomUUID().toString(), makeWords(2)).getStatusCode());
+    }
+
+    @Test
+    public void rateLimitClientCap() {
+        RateLimiter rateLimiter = new RateLimiter(1, 1, 100);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("client-" + i));
+            assertTrue(rateLimiter.getClientCount() <= 100);
+        }
+        // the most recent client is still tracked
+        assertTrue(rateLimiter.tryAcquire("client-9999") > 0);
+    }
+
+    @Test
+    public void adaptiveWriteLimit() {
+        ConcurrencyLimiter writeLimiter = new ConcurrencyLimiter(8, 0, Duration.ZERO);
+        AdaptiveWriteLimit adaptiveWriteLimit = new AdaptiveWriteLimit(writeLimiter, new LockWaitMonitor(),
+                new AdmissionProperties.Adaptive());
+        for (int i = 0; i < 10; i++) {
+            adaptiveWriteLimit.onRead(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        // a single slow read, such as one held up by a garbage collection pause, is not enough to back off
+        adaptiveWriteLimit.onRead(TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(8, writeLimiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            adaptiveWriteLimit.onRead(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertTrue(writeLimiter.getLimit() < 8);
+    }
+
+    /**
+     * The overload test floods the service with large writes, each from a distinct client so that only the concurrency
+     * limits apply, while a few readers keep querying. Writes over the limit must be shed, and reads must never be
+     * rejected. Read p99 is compared with two baselines: the same readers without any writers, and the same load
+     * against a service with admission control disabled. As the flooding clients run in the same JVM and compete with
+     * the service for the CPU, reads cannot be expected to be as fast as without load, so read p99 is bounded by ten
+     * times the unloaded one, while on a single core it stays within three to six times it. Without admission control,
+     * read p99 is over twice as high on a single core, and must be at least one and a half times as high.
+     */
+    @Test
+    public void overload() throws ExecutionException, InterruptedException {
+        final int writerCount = 16;
+        String[] known = makeWords(8);
+        assertEquals(HttpStatus.NO_CONTENT, post(restTemplate, UUID.randomUUID().toString(), known).getStatusCode());
+
+        Load idle = load(restTemplate, known, 0);
+        Load admitted = load(restTemplate, known, writerCount);
+        Load unadmitted;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SynonymServiceApplication.class)
+                .properties("server.port=0", "synonyms.admission.enabled=false")
+                .run()) {
+            TestRestTemplate unadmittedTemplate = new TestRestTemplate(new RestTemplateBuilder()
+                    .rootUri("http://localhost:" + context.getEnvironment().getProperty("local.server.port")));
+            assertEquals(HttpStatus.NO_CONTENT, post(unadmittedTemplate, UUID.randomUUID().toString(), known)
+                    .getStatusCode());
+            unadmitted = load(unadmittedTemplate, known, writerCount);
+        }
+        log.info("overload(): without writers, {}", idle);
+        log.info("overload(): with admission control, {}, final write limit {}", admitted,
+                admissionFilter.getFilter().getWriteLimit());
+        log.info("overload(): without admission control, {}", unadmitted);
+
+        assertTrue(admitted.shed > 0);
+        assertEquals(0, admitted.readFailures);
+        assertEquals(0, unadmitted.readFailures);
+        assertTrue(admitted.p99 <= 10 * Math.max(idle.p99, TimeUnit.MILLISECONDS.toNanos(1)),
+                "Read p99 of " + admitted + " is not bounded by that of " + idle);
+        assertTrue(admitted.p99 * 3 <= unadmitted.p99 * 2,
+                "Read p99 of " + admitted + " is no better than that of " + unadmitted);
+    }
+
+    /**
+     * Runs readers of the {@code known} words alongside writers of large sets of unique words for a while after a warm
+     * up period, which lets the JIT compiler settle and the write limit adapt.
+     */
+    private static Load load(TestRestTemplate restTemplate, String[] known, int writerCount)
+            throws ExecutionException, InterruptedException {
+        final int readerCount = 4;
+        final long warmUpMillis = 2000;
+        final long durationMillis = 3000;
+        AtomicBoolean run = new AtomicBoolean(true);
+        AtomicBoolean measure = new AtomicBoolean(false);
+        AtomicLong writes = new AtomicLong();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        AtomicInteger readFailures = new AtomicInteger();
+        List<Long> readLatencies = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(writerCount + readerCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writerCount; i++) {
+            futures.add(executor.submit(() -> {
+                while (run.get()) {
+                    long id = writes.incrementAndGet();
+                    HttpStatus status = post(restTemplate, "writer-" + id, sequentialWords(id, 1024))
+                            .getStatusCode();
+                    if (!measure.get()) {
+                        continue;
+                    }
+                    if (status == HttpStatus.NO_CONTENT) {
+                        accepted.incrementAndGet();
+                    } else if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+                        shed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < readerCount; i++) {
+            futures.add(executor.submit(() -> {
+                Random r = new SecureRandom();
+                while (run.get()) {
+                    long start = System.nanoTime();
+                    ResponseEntity<String> response = restTemplate.getForEntity("/synonyms?word={word}",
+                            String.class, known[r.nextInt(known.length)]);
+                    if (!measure.get()) {
+                        continue;
+                    }
+                    readLatencies.add(System.nanoTime() - start);
+                    if (response.getStatusCode() != HttpStatus.OK) {
+                        readFailures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        Thread.sleep(warmUpMillis);
+        measure.set(true);
+        Thread.sleep(durationMillis);
+        run.set(false);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        long[] latencies = readLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Load(accepted.get(), shed.get(), readFailures.get(), latencies.length,
+                latencies[latencies.length / 2], latencies[latencies.length * 99 / 100]);
+    }
+
+    private ResponseEntity<String> post(String client, String[] words) {
+        return post(restTemplate, client, words);
+    }
+
+    private static ResponseEntity<String> post(TestRestTemplate restTemplate, String client, String[] words) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CLIENT_HEADER, client);
+        return restTemplate.exchange("/synonyms", HttpMethod.POST, new HttpEntity<>(words, headers), String.class);
+    }
+
+    /**
+     * Makes unique words far cheaper than random ones, so that the writers flood the service rather than the CPU.
+     */
+    private static String[] sequentialWords(long id, int wordCount) {
+        String[] words = new String[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = "w" + id + "x" + i;
+        }
+        return words;
+    }
+
+    private static String[] makeWords(int wordCount) {
+        String[] words = new String[wordCount];
+        RandomStringGenerator rsg = RandomStringGenerator.builder().withLower().build();
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = rsg.next(16);
+        }
+        return words;
+    }
+
+
+    @Value
+    private static class Load {
+        int accepted;
+        int shed;
+        int readFailures;
+        int reads;
+        long p50;
+        long p99;
+
+        @Override
+        public String toString() {
+            return String.format("%d writes accepted, %d shed, %d reads with p50 %.1f ms and p99 %.1f ms", accepted,
+                    shed, reads, p50 / 1e6, p99 / 1e6);
+        }
+    }
+}
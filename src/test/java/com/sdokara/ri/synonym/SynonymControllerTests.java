@@ -0,0 +1,57 @@
+package com.sdokara.ri.synonym;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class SynonymControllerTests {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SynonymService synonymService;
+
+    @AfterEach
+    public void reset() {
+        synonymService.clear();
+    }
+
+    @Test
+    public void stats() {
+        assertEquals(HttpStatus.NO_CONTENT,
+                restTemplate.postForEntity("/synonyms", new String[]{"a", "b", "c"}, Void.class).getStatusCode());
+        assertEquals(HttpStatus.NO_CONTENT,
+                restTemplate.postForEntity("/synonyms", new String[]{"d", "e"}, Void.class).getStatusCode());
+
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity("/synonyms/stats", JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode stats = response.getBody();
+        assertNotNull(stats);
+        assertEquals(5, stats.get("wordCount").asLong());
+        assertEquals(2, stats.get("groupCount").asLong());
+        assertEquals(1, stats.get("sizeHistogram").get("2").asLong());
+        assertEquals(1, stats.get("sizeHistogram").get("3-4").asLong());
+        assertEquals(3, stats.get("largestGroups").get(0).get("size").asInt());
+        assertEquals("a", stats.get("largestGroups").get(0).get("word").asText());
+    }
+
+    @Test
+    public void statsInfo() {
+        synonymService.add("a", "b");
+
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity("/actuator/info", JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode stats = response.getBody();
+        assertNotNull(stats);
+        assertEquals(2, stats.get("synonyms").get("wordCount").asLong());
+        assertEquals(1, stats.get("synonyms").get("groupCount").asLong());
+    }
+}
@@ -14,6 +14,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,6 +47,19 @@ public class SynonymServiceTests {
         assertSynonyms("a", "b");
     }
 
+    @Test
+    public void manyWords() {
+        // enough words for the word index to grow several times, some of them not in ASCII
+        for (int i = 0; i < 10000; i++) {
+            synonymService.add("word" + i, "wörter" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(Set.of("wörter" + i), synonymService.get("word" + i));
+        }
+        assertNotSynonyms("word0", "wörter1");
+        assertNotSynonyms("word", "wörter");
+    }
+
     @Test
     public void idempotency() {
         synonymService.add("a", "b");
@@ -99,6 +113,140 @@ public class SynonymServiceTests {
         assertThrows(IllegalArgumentException.class, () -> synonymService.add("a", "a"));
     }
 
+    @Test
+    public void multipleWords() {
+        synonymService.add("a", "b", "C");
+        assertSynonyms("a", "b", "c");
+        assertNotSynonyms("a", "d");
+    }
+
+    @Test
+    public void multipleWordsMerge() {
+        synonymService.add("a", "b", "c");
+        synonymService.add("d", "e");
+        synonymService.add("f", "g");
+        synonymService.add("h", "a", "d", "f");
+
+        assertSynonyms("a", "b", "c", "d", "e", "f", "g", "h");
+        assertEquals(1, synonymService.getAll().size());
+    }
+
+    @Test
+    public void multipleWordsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> synonymService.add("a"));
+        assertThrows(IllegalArgumentException.class, () -> synonymService.add("a", "b", "A"));
+        assertThrows(IllegalArgumentException.class, () -> synonymService.add("a", "b", null));
+        assertThrows(IllegalArgumentException.class, () -> synonymService.add("a", "b", " "));
+        // nothing is added if any of the words is invalid
+        assertTrue(synonymService.getAll().isEmpty());
+    }
+
+    /**
+     * This test keeps adding large word arrays while another thread reads, and checks that a reader never observes a
+     * partially added array.
+     */
+    @Test
+    public void multipleWordsAtomicity() throws InterruptedException {
+        final int arrayCount = 64;
+        final int arrayLength = 1024;
+        String[][] arrays = new String[arrayCount][];
+        for (int i = 0; i < arrayCount; i++) {
+            arrays[i] = makeWords(arrayLength);
+        }
+
+        // the reader
+        AtomicBoolean read = new AtomicBoolean(true);
+        AtomicInteger readFailures = new AtomicInteger(0);
+        Thread reader = new Thread(() -> {
+            Random r = new SecureRandom();
+            while (read.get()) {
+                String[] array = arrays[r.nextInt(arrayCount)];
+                int size = synonymService.get(array[r.nextInt(arrayLength)]).size();
+                if (size != 0 && size != arrayLength - 1) {
+                    readFailures.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+
+        try {
+            for (String[] array : arrays) {
+                synonymService.add(array);
+            }
+        } finally {
+            read.set(false);
+            reader.join();
+            assertEquals(0, readFailures.get());
+        }
+    }
+
+    /**
+     * A rough benchmark of adding 1k-word arrays, both into an empty dictionary and chained onto an ever-growing
+     * synonym set. As the cost of an add depends on the number of words added rather than on the size of the set they
+     * join, chaining must not be much slower even as the set grows to hundreds of thousands of words.
+     */
+    @Test
+    public void multipleWordsBenchmark() {
+        final int arrayCount = 256;
+        final int arrayLength = 1024;
+        String[][] arrays = new String[arrayCount][];
+        for (int i = 0; i < arrayCount; i++) {
+            arrays[i] = makeWords(arrayLength);
+        }
+
+        long start = System.nanoTime();
+        for (String[] array : arrays) {
+            synonymService.add(array);
+        }
+        long disjoint = System.nanoTime() - start;
+        assertEquals(arrayCount, synonymService.getAll().size());
+        synonymService.clear();
+
+        // each array shares its first word with the previous one, so every add grows the same set
+        for (int i = 1; i < arrayCount; i++) {
+            arrays[i][0] = arrays[i - 1][arrayLength - 1];
+        }
+        start = System.nanoTime();
+        for (String[] array : arrays) {
+            synonymService.add(array);
+        }
+        long chained = System.nanoTime() - start;
+        assertEquals(1, synonymService.getAll().size());
+
+        log.info("multipleWordsBenchmark(): {} arrays of {} words - disjoint {} us/add, chained {} us/add",
+                arrayCount, arrayLength, disjoint / arrayCount / 1000, chained / arrayCount / 1000);
+        assertTrue(chained < disjoint * 4, "Chained adds do not scale with the number of words added");
+    }
+
+    @Test
+    public void stats() {
+        synonymService.add("a", "b");
+        synonymService.add("c", "d", "e");
+        synonymService.add("f", "g", "h", "i", "j");
+
+        SynonymStats stats = synonymService.getStats();
+        assertEquals(10, stats.getWordCount());
+        assertEquals(3, stats.getGroupCount());
+        assertEquals(Map.of("2", 1L, "3-4", 1L, "5-8", 1L), stats.getSizeHistogram());
+        assertEquals(List.of(5, 3, 2), stats.getLargestGroups().stream()
+                .map(SynonymStats.Group::getSize).collect(Collectors.toList()));
+        assertTrue(Set.of("f", "g", "h", "i", "j").contains(stats.getLargestGroups().get(0).getWord()));
+
+        // merging removes the merged sets
+        synonymService.add("a", "c");
+        stats = synonymService.getStats();
+        assertEquals(10, stats.getWordCount());
+        assertEquals(2, stats.getGroupCount());
+        assertEquals(Map.of("5-8", 2L), stats.getSizeHistogram());
+
+        synonymService.clear();
+        stats = synonymService.getStats();
+        assertEquals(0, stats.getWordCount());
+        assertEquals(0, stats.getGroupCount());
+        assertTrue(stats.getSizeHistogram().isEmpty());
+        assertTrue(stats.getLargestGroups().isEmpty());
+    }
+
     /**
      * The concurrency test inserts x random pairs of words in one thread, then shuffles the pairs in the list and
      * repeats the process, and then inserts the shuffled pairs from y threads. All insertions must yield the same
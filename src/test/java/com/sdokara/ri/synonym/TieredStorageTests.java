@@ -0,0 +1,366 @@
+package com.sdokara.ri.synonym;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class TieredStorageTests {
+    private static final long SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private TieredGroupStore store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new TieredGroupStore(16 * 1024, directory, SEGMENT_SIZE, 1024);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.close();
+    }
+
+    /**
+     * Fills a tiered service well over its heap budget, and checks that it behaves exactly like the heap-only one,
+     * including when merging synonym sets that have been spilled to disk.
+     */
+    @Test
+    public void sameAsHeap() throws Exception {
+        SynonymService tiered = new SynonymServiceImpl(store, new LockWaitMonitor());
+        SynonymService heap = new SynonymServiceImpl(new HeapGroupStore(), new LockWaitMonitor());
+        String[][] groups = makeGroups(1024, 8);
+        for (String[] group : groups) {
+            tiered.add(group);
+            heap.add(group);
+        }
+        assertTrue(store.getColdCount() > 0);
+        assertTrue(store.getResidentBytes() <= 16 * 1024);
+
+        // merge pairs of groups, most of which are cold
+        Random random = new Random(0);
+        for (int i = 0; i < 256; i++) {
+            String word1 = groups[random.nextInt(groups.length)][0];
+            String word2 = groups[random.nextInt(groups.length)][1];
+            if (!word1.equals(word2)) {
+                tiered.add(word1, word2);
+                heap.add(word1, word2);
+            }
+        }
+        for (String[] group : groups) {
+            for (String word : group) {
+                assertEquals(heap.get(word), tiered.get(word));
+            }
+        }
+        assertEquals(new HashSet<>(heap.getAll()), new HashSet<>(tiered.getAll()));
+        assertEquals(heap.getStats(), tiered.getStats());
+
+        tiered.clear();
+        assertTrue(tiered.getAll().isEmpty());
+        assertEquals(0, store.getResidentCount());
+        assertEquals(0, store.getColdCount());
+        assertEquals(0, countFiles());
+    }
+
+    /**
+     * Two stores sharing a directory must not interfere with each other's segments.
+     */
+    @Test
+    public void sharedDirectory() throws Exception {
+        TieredGroupStore other = new TieredGroupStore(0, directory, SEGMENT_SIZE, 1024);
+        try {
+            // with no heap budget, everything is spilled to disk
+            store.close();
+            store = new TieredGroupStore(0, directory, SEGMENT_SIZE, 1024);
+            store.put(1, new HashSet<>(Set.of("a", "b")));
+            other.put(1, new HashSet<>(Set.of("c", "d")));
+            assertEquals(1, store.getColdCount());
+            assertEquals(1, other.getColdCount());
+
+            assertEquals(Set.of("a", "b"), store.get(1));
+            assertEquals(Set.of("c", "d"), other.get(1));
+        } finally {
+            other.close();
+        }
+        store.close();
+        try (var files = Files.list(directory)) {
+            // closing deletes the segment directories too
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * An interrupted reader closes the segment file for all the readers, which must not leave the sets in it unreadable.
+     */
+    @Test
+    public void interruptedRead() {
+        store.close();
+        store = new TieredGroupStore(0, directory, SEGMENT_SIZE, 1024);
+        store.put(1, new HashSet<>(Set.of("a", "b")));
+        store.put(2, new HashSet<>(Set.of("c", "d")));
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(UncheckedIOException.class, () -> store.get(1));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(Set.of("c", "d"), store.get(2));
+        assertEquals(Set.of("a", "b"), store.get(1));
+    }
+
+    /**
+     * A cold set that would need to displace both a rarely and a frequently queried resident set must not be admitted,
+     * and must not displace the rarely queried one either.
+     */
+    @Test
+    public void admissionEvictsNothingWhenRejected() {
+        // room for two sets of two words, which is less than one set of two plus one set of three
+        store.close();
+        store = new TieredGroupStore(2 * (64 + 2 * 112), directory, SEGMENT_SIZE, 1024);
+        store.put(3, new HashSet<>(Set.of("c1", "c2", "c3")));
+        store.put(1, new HashSet<>(Set.of("a1", "a2")));
+        store.put(2, new HashSet<>(Set.of("b1", "b2")));
+        assertEquals(2, store.getResidentCount());
+        for (int i = 0; i < 10; i++) {
+            store.get(2);
+        }
+
+        assertEquals(Set.of("c1", "c2", "c3"), store.get(3));
+        assertEquals(2, store.getResidentCount());
+        assertEquals(1, store.getColdCount());
+    }
+
+    /**
+     * A set larger than the whole heap budget must go straight to disk, without displacing the resident sets.
+     */
+    @Test
+    public void oversizedSetEvictsNothing() {
+        store.close();
+        store = new TieredGroupStore(10 * (64 + 2 * 112), directory, SEGMENT_SIZE, 1024);
+        for (int i = 0; i < 10; i++) {
+            store.put(i, new HashSet<>(Set.of("a" + i, "b" + i)));
+        }
+        Set<String> oversized = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            oversized.add("c" + i);
+        }
+        store.put(10, oversized);
+        assertEquals(10, store.getResidentCount());
+        assertEquals(1, store.getColdCount());
+        assertEquals(oversized, store.get(10));
+
+        // nor must a resident set that outgrows the budget
+        Set<String> outgrown = store.peek(0);
+        outgrown.addAll(oversized);
+        store.put(0, outgrown);
+        assertEquals(9, store.getResidentCount());
+        assertEquals(2, store.getColdCount());
+        assertEquals(outgrown, store.get(0));
+    }
+
+    /**
+     * Reads from many threads at once, which promote and evict synonym sets while small segments keep being compacted
+     * in the background, and checks that every read returns the right set.
+     */
+    @Test
+    public void concurrentReads() throws Exception {
+        final int threadCount = 8;
+        final int readCount = 20000;
+        store.close();
+        store = new TieredGroupStore(16 * 1024, directory, 4 * 1024, 1024);
+        SynonymService synonymService = new SynonymServiceImpl(store, new LockWaitMonitor());
+        String[][] groups = makeGroups(2048, 4);
+        for (String[] group : groups) {
+            synonymService.add(group);
+        }
+
+        AtomicInteger readFailures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+                for (int j = 0; j < readCount; j++) {
+                    // a skewed, shifting popularity, so that sets keep moving between the tiers
+                    int index = random.nextBoolean()
+                            ? (j / 1000 * 64 + random.nextInt(64)) % groups.length
+                            : random.nextInt(groups.length);
+                    String[] group = groups[index];
+                    Set<String> synonyms = synonymService.get(group[0]);
+                    if (!synonyms.equals(Set.of(group[1], group[2], group[3]))) {
+                        readFailures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, readFailures.get());
+        assertTrue(store.getResidentBytes() <= 16 * 1024);
+    }
+
+    /**
+     * Replays a Zipfian query stream against a tiered service, and reports the latency of queries to the hot and the
+     * cold synonym sets, the hot ones being the top 5% by popularity. Also reports the heap the same dictionary takes
+     * after garbage collection with a heap-only and a tiered service, the words being generated on the fly so that
+     * only the services hold them.
+     */
+    @Test
+    public void skewedReplay() {
+        final int groupCount = 100000;
+        final int groupSize = 8;
+        final int queryCount = 500000;
+        final long heapBudget = groupCount / 10 * (64 + groupSize * (96 + 16));
+
+        long heapUsed = retainedHeap(() -> addGroups(new SynonymServiceImpl(new HeapGroupStore(),
+                new LockWaitMonitor()), groupCount, groupSize));
+        store.close();
+        long baseline = usedHeap();
+        store = new TieredGroupStore(heapBudget, directory, SEGMENT_SIZE * 16, groupCount);
+        SynonymService synonymService = addGroups(new SynonymServiceImpl(store, new LockWaitMonitor()), groupCount,
+                groupSize);
+        long tieredUsed = usedHeap() - baseline;
+
+        double[] cdf = zipf(groupCount, 1.0);
+        Random random = new Random(0);
+        int hotCount = groupCount / 20;
+        long[] hot = new long[queryCount];
+        long[] cold = new long[queryCount];
+        int hotQueries = 0;
+        int coldQueries = 0;
+        for (int i = 0; i < queryCount; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble());
+            rank = rank < 0 ? Math.min(-rank - 1, groupCount - 1) : rank;
+            String word = word(rank, random.nextInt(groupSize));
+
+            long start = System.nanoTime();
+            Set<String> synonyms = synonymService.get(word);
+            long latency = System.nanoTime() - start;
+            assertEquals(groupSize - 1, synonyms.size());
+            if (rank < hotCount) {
+                hot[hotQueries++] = latency;
+            } else {
+                cold[coldQueries++] = latency;
+            }
+        }
+
+        long[] hotLatencies = Arrays.copyOf(hot, hotQueries);
+        long[] coldLatencies = Arrays.copyOf(cold, coldQueries);
+        Arrays.sort(hotLatencies);
+        Arrays.sort(coldLatencies);
+        log.info("skewedReplay(): {} groups of {} words take {} KiB of heap when all resident, {} KiB when tiered",
+                groupCount, groupSize, heapUsed / 1024, tieredUsed / 1024);
+        log.info("skewedReplay(): {} resident taking an estimated {} of {} budget bytes, {} cold",
+                store.getResidentCount(), store.getResidentBytes(), heapBudget, store.getColdCount());
+        log.info("skewedReplay(): {} hot queries with p50 {} us and p99 {} us", hotQueries,
+                micros(hotLatencies, 50), micros(hotLatencies, 99));
+        log.info("skewedReplay(): {} cold queries with p50 {} us and p99 {} us", coldQueries,
+                micros(coldLatencies, 50), micros(coldLatencies, 99));
+
+        assertTrue(store.getResidentBytes() <= heapBudget);
+        assertTrue(store.getColdCount() > 0);
+        assertTrue(hotQueries > coldQueries);
+        // the word index and the per-set statistics stay on the heap in both modes
+        assertTrue(tieredUsed < heapUsed * 2 / 3, "Tiered storage takes " + tieredUsed + " of " + heapUsed + " bytes");
+    }
+
+    private long countFiles() throws IOException {
+        try (var files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static SynonymService addGroups(SynonymService synonymService, int groupCount, int groupSize) {
+        String[] group = new String[groupSize];
+        for (int i = 0; i < groupCount; i++) {
+            for (int j = 0; j < groupSize; j++) {
+                group[j] = word(i, j);
+            }
+            synonymService.add(group);
+        }
+        return synonymService;
+    }
+
+    /**
+     * @return the same random word of 16 lowercase letters for the same group and index
+     */
+    private static String word(int group, int index) {
+        SplittableRandom random = new SplittableRandom((long) group << 32 | index);
+        char[] chars = new char[16];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the heap taken by the object made by the {@code factory}, as measured after garbage collection
+     */
+    private static long retainedHeap(Supplier<Object> factory) {
+        long baseline = usedHeap();
+        Object retained = factory.get();
+        long used = usedHeap() - baseline;
+        Reference.reachabilityFence(retained);
+        return used;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static String[][] makeGroups(int groupCount, int groupSize) {
+        String[][] groups = new String[groupCount][groupSize];
+        RandomStringGenerator rsg = RandomStringGenerator.builder().withLower().build();
+        for (int i = 0; i < groupCount; i++) {
+            for (int j = 0; j < groupSize; j++) {
+                groups[i][j] = rsg.next(16);
+            }
+        }
+        return groups;
+    }
+
+    private static double[] zipf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static long micros(long[] sorted, int percentile) {
+        return TimeUnit.NANOSECONDS.toMicros(sorted[(int) ((long) sorted.length * percentile / 100)]);
+    }
+}